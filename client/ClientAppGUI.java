@@ -129,6 +129,14 @@ public class ClientAppGUI extends JFrame {
                     case "file_info":
                         handleFileTransfer(msg);
                         break;
+                    case "ping":
+                        JSONObject pong = new JSONObject();
+                        pong.put("type", "pong");
+                        out.println(pong.toString());
+                        break;
+                    case "rate_limited":
+                        chatArea.append("[RATE LIMITED] " + msg.optString("message") + "\n");
+                        break;
                     case "file_error":
                         chatArea.append("[FILE ERROR] " + msg.optString("message") + "\n");
                         break;
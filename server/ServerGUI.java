@@ -5,17 +5,57 @@ import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 import org.json.JSONObject;
 
 public class ServerGUI extends JFrame {
     private JTextArea logArea;
     private JTextField sendToField, messageField;
-    private JButton startButton, stopButton, sendButton;
+    private JButton startButton, stopButton, sendButton, statsButton;
     private ServerSocket serverSocket;
     private ExecutorService pool;
     private boolean isRunning = false;
     private ConcurrentHashMap<String, PrintWriter> clientWriters = new ConcurrentHashMap<>();
 
+    // Admission control and rate limiting
+    private static final int MAX_CONNECTIONS = 100;
+    private static final int MAX_CONNECTIONS_PER_IP = 10;
+    private static final int IP_LIMIT_MULTIPLIER = 4;
+    private static final long FILE_BYTES_PER_SECOND = 1024 * 1024;
+    private static final double CONNECT_BURST = 10;
+    private static final double CONNECTS_PER_SECOND = 2;
+    private static final long BUCKET_SWEEP_MILLIS = 60_000;
+    private static final Map<String, double[]> RATE_LIMITS = new HashMap<>();
+    static {
+        // type -> {burst capacity, refill tokens per second}, per user; per IP is IP_LIMIT_MULTIPLIER times this
+        RATE_LIMITS.put("login", new double[]{3, 1});
+        RATE_LIMITS.put("message", new double[]{10, 5});
+        RATE_LIMITS.put("command", new double[]{3, 1});
+        RATE_LIMITS.put("file_request", new double[]{2, 0.2});
+        RATE_LIMITS.put("ping", new double[]{5, 1});
+    }
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final ConcurrentHashMap<String, Integer> connectionsPerIp = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TokenBucket> rateBuckets = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedConnections = new AtomicLong();
+    private final AtomicLong throttledRequests = new AtomicLong();
+    private final AtomicLong throttledFileBytes = new AtomicLong();
+
+    // Heartbeats and connection timeouts, all driven by one timer wheel
+    private static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 512;
+    private static final long CHECK_INTERVAL_MILLIS = 5_000;
+    private static final long HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+    private static final long PING_INTERVAL_MILLIS = 15_000;
+    private static final long IDLE_TIMEOUT_MILLIS = 45_000;
+    private static final long READ_TIMEOUT_MILLIS = 15_000;
+    private static final long WRITE_TIMEOUT_MILLIS = 20_000;
+    private TimerWheel timer;
+    private ExecutorService heartbeatPool;
+    private final AtomicLong timedOutConnections = new AtomicLong();
+    private final Set<ClientHandler> activeHandlers = ConcurrentHashMap.newKeySet();
+
     public ServerGUI() {
         setTitle("Java Server GUI");
         setSize(700, 500);
@@ -40,9 +80,13 @@ public class ServerGUI extends JFrame {
 
         sendButton.addActionListener(e -> sendMessageToClient());
 
+        statsButton = new JButton("Throttle Stats");
+        statsButton.addActionListener(e -> logThrottleStats());
+
         JPanel controlPanel = new JPanel();
         controlPanel.add(startButton);
         controlPanel.add(stopButton);
+        controlPanel.add(statsButton);
 
         JPanel messagePanel = new JPanel();
         messagePanel.add(new JLabel("To:"));
@@ -59,7 +103,10 @@ public class ServerGUI extends JFrame {
     private void startServer() {
         int PORT = 12345;
         isRunning = true;
-        pool = Executors.newFixedThreadPool(10);
+        pool = Executors.newFixedThreadPool(MAX_CONNECTIONS);
+        heartbeatPool = Executors.newFixedThreadPool(2);
+        timer = new TimerWheel(TICK_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+        scheduleBucketSweep(timer);
         log("[SERVER] Starting on port " + PORT + "...");
 
         startButton.setEnabled(false);
@@ -71,6 +118,7 @@ public class ServerGUI extends JFrame {
                 serverSocket = new ServerSocket(PORT);
                 while (isRunning) {
                     Socket client = serverSocket.accept();
+                    if (!admitConnection(client)) continue;
                     log("[CONNECT] New client: " + client.getInetAddress());
                     pool.execute(new ClientHandler(client));
                 }
@@ -102,6 +150,9 @@ public class ServerGUI extends JFrame {
         try {
             notifyServerShutdown();
             if (serverSocket != null) serverSocket.close();
+            closeAllClients();
+            if (timer != null) timer.stop();
+            if (heartbeatPool != null) heartbeatPool.shutdownNow();
             if (pool != null) {
                 pool.shutdown();
                 if (!pool.awaitTermination(2, TimeUnit.SECONDS)) {
@@ -120,6 +171,120 @@ public class ServerGUI extends JFrame {
         sendButton.setEnabled(false);
     }
 
+    // Their timeouts live in the wheel being stopped, so no handler may outlive it: closing the
+    // socket unblocks each handler's read and lets its finally block release the connection slot
+    private void closeAllClients() {
+        for (ClientHandler handler : activeHandlers) {
+            try {
+                handler.client.close();
+            } catch (IOException e) {
+                log("[ERROR] Closing client: " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean admitConnection(Socket client) {
+        String ip = client.getInetAddress().getHostAddress();
+        String reason = null;
+
+        if (!tryAcquire("ip:" + ip + ":connect", CONNECT_BURST, CONNECTS_PER_SECOND, 1)) {
+            reason = "Reconnecting too fast, try again later";
+        } else if (activeConnections.incrementAndGet() > MAX_CONNECTIONS) {
+            reason = "Server is full, try again later";
+            activeConnections.decrementAndGet();
+        } else if (connectionsPerIp.merge(ip, 1, Integer::sum) > MAX_CONNECTIONS_PER_IP) {
+            reason = "Too many connections from your address";
+            releaseConnection(ip);
+        }
+
+        if (reason == null) return true;
+
+        rejectedConnections.incrementAndGet();
+        try {
+            // Best effort: the rejection fits in the socket send buffer, so this never blocks the accept loop
+            JSONObject rejectMsg = new JSONObject();
+            rejectMsg.put("type", "disconnect");
+            rejectMsg.put("message", reason);
+            client.getOutputStream().write((rejectMsg.toString() + "\n").getBytes());
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+        log("[REJECT] " + ip + ": " + reason);
+        return false;
+    }
+
+    private void releaseConnection(String ip) {
+        activeConnections.decrementAndGet();
+        releaseIp(ip);
+    }
+
+    private void releaseIp(String ip) {
+        connectionsPerIp.compute(ip, (k, count) -> count == null || count <= 1 ? null : count - 1);
+    }
+
+    // Buckets outlive connections so reconnecting never resets a limit; a full bucket is
+    // indistinguishable from a new one, so only those are dropped. Runs on the timer thread,
+    // off the accept path; it is an in-memory scan with no I/O. Re-arms on the wheel that ran it,
+    // so a stopped server's sweep dies with its wheel instead of doubling up after a restart.
+    private void scheduleBucketSweep(TimerWheel wheel) {
+        wheel.newTimeout(() -> {
+            try {
+                for (String key : rateBuckets.keySet()) {
+                    rateBuckets.computeIfPresent(key, (k, bucket) -> bucket.isFull() ? null : bucket);
+                }
+            } finally {
+                scheduleBucketSweep(wheel);
+            }
+        }, BUCKET_SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Lookup and use happen inside compute() so a concurrent sweep can't evict a bucket mid-use
+    private boolean tryAcquire(String key, double capacity, double refillPerSecond, double amount) {
+        boolean[] allowed = new boolean[1];
+        rateBuckets.compute(key, (k, bucket) -> {
+            if (bucket == null) bucket = new TokenBucket(capacity, refillPerSecond);
+            allowed[0] = bucket.tryAcquire(amount);
+            return bucket;
+        });
+        return allowed[0];
+    }
+
+    private long reserve(String key, double capacity, double refillPerSecond, double amount) {
+        long[] waitNanos = new long[1];
+        rateBuckets.compute(key, (k, bucket) -> {
+            if (bucket == null) bucket = new TokenBucket(capacity, refillPerSecond);
+            waitNanos[0] = bucket.reserve(amount);
+            return bucket;
+        });
+        return waitNanos[0];
+    }
+
+    private boolean allowRequest(String username, String ip, String type) {
+        double[] limit = RATE_LIMITS.get(type.toLowerCase());
+        if (limit == null) return true;
+
+        boolean allowed = tryAcquire("ip:" + ip + ":" + type.toLowerCase(),
+            limit[0] * IP_LIMIT_MULTIPLIER, limit[1] * IP_LIMIT_MULTIPLIER, 1);
+        if (allowed && username != null) {
+            allowed = tryAcquire("user:" + username + ":" + type.toLowerCase(), limit[0], limit[1], 1);
+        }
+
+        if (!allowed) throttledRequests.incrementAndGet();
+        return allowed;
+    }
+
+    private void logThrottleStats() {
+        log("[STATS] Active connections: " + activeConnections.get() + "/" + MAX_CONNECTIONS
+            + ", rejected: " + rejectedConnections.get()
+            + ", throttled requests: " + throttledRequests.get()
+            + ", file bytes delayed: " + throttledFileBytes.get()
+            + ", timed out: " + timedOutConnections.get());
+    }
+
     private void log(String message) {
         SwingUtilities.invokeLater(() -> logArea.append(message + "\n"));
     }
@@ -180,18 +345,109 @@ public class ServerGUI extends JFrame {
 
     private class ClientHandler implements Runnable {
         private Socket client;
+        private OutputStream socketOut;
+        private volatile PrintWriter writer;
+        private volatile TimerWheel.Timeout timeout;
+        private final Lock streamLock = new ReentrantLock();
+
+        // Timestamps from System.nanoTime(); 0 means "not armed"
+        private final long acceptedAt = System.nanoTime();
+        private volatile long lastReadAt = acceptedAt;
+        private volatile long lastPingAt;
+        private volatile long readDeadline;
+        private volatile long writeStartedAt;
+        private volatile boolean loggedIn = false;
+        private volatile boolean inTransfer = false;
+        private volatile boolean runningCommand = false;
+        private volatile boolean pingQueued = false;
+        private volatile boolean closed = false;
 
         public ClientHandler(Socket socket) {
             this.client = socket;
+            activeHandlers.add(this);
+            // The handshake clock starts at accept time, not when a pool thread picks us up
+            this.timeout = timer.newTimeout(this::checkTimeouts, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        // Runs on the timer thread, so it must never block: pings are handed to heartbeatPool
+        private void checkTimeouts() {
+            boolean rearm = true;
+            try {
+                if (closed) {
+                    rearm = false;
+                    return;
+                }
+                long now = System.nanoTime();
+                String reason = null;
+
+                if (!loggedIn && now - acceptedAt > TimeUnit.MILLISECONDS.toNanos(HANDSHAKE_TIMEOUT_MILLIS)) {
+                    reason = "handshake timeout";
+                } else if (readDeadline != 0 && now > readDeadline) {
+                    reason = "read timeout";
+                } else if (writeStartedAt != 0 && now - writeStartedAt > TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT_MILLIS)) {
+                    reason = "write timeout";
+                } else if (!inTransfer && !runningCommand && now - lastReadAt > TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MILLIS)) {
+                    reason = "idle timeout";
+                }
+
+                if (reason != null) {
+                    rearm = false;
+                    timedOutConnections.incrementAndGet();
+                    log("[TIMEOUT] " + client.getInetAddress() + ": " + reason);
+                    try {
+                        // Unblocks the handler's pending read or write; its finally block does the cleanup
+                        client.close();
+                    } catch (IOException ignored) {
+                    }
+                    return;
+                }
+
+                // A connection already stuck in a write is left to the write timeout; queueing a ping
+                // for it would only tie up a heartbeat thread that other clients need
+                long sinceHeard = now - Math.max(lastReadAt, lastPingAt);
+                if (loggedIn && !inTransfer && !runningCommand && !pingQueued && writeStartedAt == 0
+                        && sinceHeard >= TimeUnit.MILLISECONDS.toNanos(PING_INTERVAL_MILLIS)) {
+                    lastPingAt = now;
+                    pingQueued = true;
+                    heartbeatPool.execute(this::sendPing);
+                }
+            } catch (RuntimeException e) {
+                pingQueued = false;
+                log("[ERROR] Timeout check for " + client.getInetAddress() + ": " + e.getMessage());
+            } finally {
+                // Deadlines armed by the handler thread are picked up here, so they are enforced within one interval
+                if (rearm && !closed) {
+                    timeout = timer.newTimeout(this::checkTimeouts, CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        private void sendPing() {
+            pingQueued = false;
+            PrintWriter out = writer;
+            // Skip rather than wait if the stream is busy: a ping is only useful when it goes out
+            // promptly, and the next check sends another one
+            if (out == null || writeStartedAt != 0 || !streamLock.tryLock()) return;
+            try {
+                // Same lock as the start of a file transfer, so a ping can never land after file_info
+                if (closed || inTransfer) return;
+                JSONObject ping = new JSONObject();
+                ping.put("type", "ping");
+                out.println(ping.toString());
+            } finally {
+                streamLock.unlock();
+            }
         }
 
         @Override
         public void run() {
             String username = null;
+            String ip = client.getInetAddress().getHostAddress();
             try (
                 BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
-                PrintWriter out = new PrintWriter(client.getOutputStream(), true)
+                PrintWriter out = new PrintWriter(socketOut = new TimedOutputStream(client.getOutputStream()), true)
             ) {
+                writer = out;
                 JSONObject welcomeMsg = new JSONObject();
                 welcomeMsg.put("type", "welcome");
                 welcomeMsg.put("message", "Connected to Java Server!");
@@ -199,12 +455,24 @@ public class ServerGUI extends JFrame {
 
                 String inputLine;
                 while ((inputLine = in.readLine()) != null) {
+                    lastReadAt = System.nanoTime();
                     JSONObject receivedMsg = new JSONObject(inputLine);
                     String type = receivedMsg.optString("type");
 
+                    if ("pong".equalsIgnoreCase(type)) continue;
+
+                    if (!allowRequest(username, ip, type)) {
+                        JSONObject limited = new JSONObject();
+                        limited.put("type", "rate_limited");
+                        limited.put("message", "Too many " + type + " requests, slow down");
+                        out.println(limited.toString());
+                        continue;
+                    }
+
                     if ("login".equalsIgnoreCase(type)) {
                         username = receivedMsg.optString("username", "");
                         if (!username.isEmpty()) {
+                            loggedIn = true;
                             clientWriters.put(username, out);
                             log("[LOGIN] " + username + " connected.");
 
@@ -219,11 +487,18 @@ public class ServerGUI extends JFrame {
                         handleCommand(receivedMsg, out);
                     } else if ("file_request".equalsIgnoreCase(type)) {
                         handleFileRequest(receivedMsg, out, in);
+                    } else if ("ping".equalsIgnoreCase(type)) {
+                        JSONObject pong = new JSONObject();
+                        pong.put("type", "pong");
+                        out.println(pong.toString());
                     }
                 }
             } catch (Exception e) {
                 log("[ERROR] Client error: " + e.getMessage());
             } finally {
+                closed = true;
+                activeHandlers.remove(this);
+                if (timeout != null) timeout.cancel();
                 if (username != null) {
                     synchronized (clientWriters) {
                         clientWriters.remove(username);
@@ -243,6 +518,7 @@ public class ServerGUI extends JFrame {
                 } catch (IOException e) {
                     log("[ERROR] Closing client: " + e.getMessage());
                 }
+                releaseConnection(ip);
             }
         }
 
@@ -294,6 +570,8 @@ public class ServerGUI extends JFrame {
             String from = msg.optString("username", "unknown");
 
             if (!cmd.isEmpty()) {
+                // The read loop is stuck here until the command exits, so pongs go unread meanwhile
+                runningCommand = true;
                 try {
                     ProcessBuilder pb = new ProcessBuilder(System.getProperty("os.name").toLowerCase().contains("win") ?
                         new String[]{"cmd.exe", "/c", cmd} : new String[]{"bash", "-c", cmd});
@@ -317,6 +595,10 @@ public class ServerGUI extends JFrame {
                     log("[COMMAND from " + from + "] " + cmd);
                 } catch (Exception e) {
                     log("[ERROR] Running command: " + e.getMessage());
+                } finally {
+                    // Restart the idle clock rather than judging the client on time spent waiting for us
+                    lastReadAt = System.nanoTime();
+                    runningCommand = false;
                 }
             }
         }
@@ -348,13 +630,27 @@ public class ServerGUI extends JFrame {
                 fileInfo.put("type", "file_info");
                 fileInfo.put("filename", file.getName());
                 fileInfo.put("size", file.length());
-                out.println(fileInfo.toString());
-                out.flush();
+                streamLock.lock();
+                try {
+                    // No pings while file bytes share the stream with JSON lines
+                    inTransfer = true;
+                    out.println(fileInfo.toString());
+                    out.flush();
+                } finally {
+                    streamLock.unlock();
+                }
                 log("[FILE] Metadata sent for: " + fileName);
 
                 // Step 2: Wait for file_ready response
-                String response = in.readLine();
-                JSONObject readyMsg = new JSONObject(response);
+                readDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(READ_TIMEOUT_MILLIS);
+                JSONObject readyMsg;
+                do {
+                    // Skip a pong that was already in flight when the transfer started
+                    String response = in.readLine();
+                    lastReadAt = System.nanoTime();
+                    readyMsg = new JSONObject(response);
+                } while ("pong".equalsIgnoreCase(readyMsg.optString("type")));
+                readDeadline = 0;
                 if (!"file_ready".equalsIgnoreCase(readyMsg.optString("type"))) {
                     log("[FILE ERROR] Client not ready");
                     return;
@@ -362,12 +658,20 @@ public class ServerGUI extends JFrame {
 
                 // Step 3: Send the actual file
                 try (
-                    BufferedOutputStream bos = new BufferedOutputStream(client.getOutputStream());
+                    BufferedOutputStream bos = new BufferedOutputStream(socketOut);
                     FileInputStream fis = new FileInputStream(file)
                 ) {
+                    // One bandwidth bucket per address, so parallel transfers share the same cap
+                    String ip = client.getInetAddress().getHostAddress();
                     byte[] buffer = new byte[8192];
                     int count;
                     while ((count = fis.read(buffer)) > 0) {
+                        long waitNanos = reserve("ip:" + ip + ":bandwidth", FILE_BYTES_PER_SECOND, FILE_BYTES_PER_SECOND, count);
+                        if (waitNanos > 0) {
+                            throttledFileBytes.addAndGet(count);
+                            bos.flush();
+                            TimeUnit.NANOSECONDS.sleep(waitNanos);
+                        }
                         bos.write(buffer, 0, count);
                     }
                     bos.flush();
@@ -383,6 +687,184 @@ public class ServerGUI extends JFrame {
 
             } catch (Exception e) {
                 log("[FILE ERROR] " + e.getMessage());
+            } finally {
+                readDeadline = 0;
+                inTransfer = false;
+            }
+        }
+
+        // Marks how long a write has been blocked so the timer wheel can cut off clients that stop reading
+        private class TimedOutputStream extends FilterOutputStream {
+            TimedOutputStream(OutputStream out) {
+                super(out);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                writeStartedAt = System.nanoTime();
+                try {
+                    out.write(b);
+                } finally {
+                    writeStartedAt = 0;
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                writeStartedAt = System.nanoTime();
+                try {
+                    out.write(b, off, len);
+                } finally {
+                    writeStartedAt = 0;
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                writeStartedAt = System.nanoTime();
+                try {
+                    out.flush();
+                } finally {
+                    writeStartedAt = 0;
+                }
+            }
+        }
+    }
+
+    private static class TokenBucket {
+        private final double capacity;
+        private final double refillPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerNano = refillPerSecond / 1_000_000_000.0;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized boolean tryAcquire(double amount) {
+            refill();
+            if (tokens < amount) return false;
+            tokens -= amount;
+            return true;
+        }
+
+        // Takes the tokens unconditionally and returns how long the caller must wait for them;
+        // the balance may go negative so large requests still progress
+        synchronized long reserve(double amount) {
+            refill();
+            tokens -= amount;
+            return tokens < 0 ? (long) (-tokens / refillPerNano) : 0;
+        }
+
+        synchronized boolean isFull() {
+            refill();
+            return tokens >= capacity;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+            lastRefill = now;
+        }
+    }
+
+    // Hashed timer wheel: one thread and O(1) scheduling no matter how many connections hold a timeout
+    private class TimerWheel implements Runnable {
+        private final long tickNanos;
+        private final ArrayDeque<Timeout>[] wheel;
+        private final int mask;
+        private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<>();
+        private final long startTime = System.nanoTime();
+        private final Thread worker;
+        private volatile boolean running = true;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        TimerWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+            if (Integer.bitCount(wheelSize) != 1) throw new IllegalArgumentException("wheelSize must be a power of two");
+            this.tickNanos = unit.toNanos(tickDuration);
+            this.wheel = new ArrayDeque[wheelSize];
+            for (int i = 0; i < wheelSize; i++) wheel[i] = new ArrayDeque<>();
+            this.mask = wheelSize - 1;
+            this.worker = new Thread(this, "timer-wheel");
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+            Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+            pending.add(timeout);
+            return timeout;
+        }
+
+        void stop() {
+            running = false;
+            worker.interrupt();
+        }
+
+        @Override
+        public void run() {
+            long tick = 0;
+            while (running) {
+                long sleepNanos = tickNanos * (tick + 1) - (System.nanoTime() - startTime);
+                if (sleepNanos > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                    } catch (InterruptedException e) {
+                        continue;
+                    }
+                }
+                transferPending(tick);
+                expire(tick);
+                tick++;
+            }
+        }
+
+        // Only the worker thread touches the buckets, so scheduling from other threads goes through the pending queue
+        private void transferPending(long tick) {
+            Timeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.cancelled) continue;
+                long calculated = timeout.deadline / tickNanos;
+                timeout.remainingRounds = (calculated - tick) / wheel.length;
+                wheel[(int) (Math.max(calculated, tick) & mask)].add(timeout);
+            }
+        }
+
+        private void expire(long tick) {
+            Iterator<Timeout> it = wheel[(int) (tick & mask)].iterator();
+            while (it.hasNext()) {
+                Timeout timeout = it.next();
+                if (timeout.cancelled) {
+                    it.remove();
+                } else if (timeout.remainingRounds <= 0) {
+                    it.remove();
+                    try {
+                        timeout.task.run();
+                    } catch (Throwable t) {
+                        log("[ERROR] Timer task failed: " + t);
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+            }
+        }
+
+        class Timeout {
+            private final Runnable task;
+            private final long deadline;
+            private long remainingRounds;
+            private volatile boolean cancelled = false;
+
+            Timeout(Runnable task, long deadline) {
+                this.task = task;
+                this.deadline = deadline;
+            }
+
+            void cancel() {
+                cancelled = true;
             }
         }
     }